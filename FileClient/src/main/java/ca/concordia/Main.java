@@ -13,11 +13,23 @@ public class Main {
     public static void main(String[] args) {
         //Socket CLient
         System.out.println("Hello and welcome!");
+
+        // Usage: [host] [port], any node (primary or replica) can be used
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = 12345;
+        if (args.length > 1) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.err.println("Usage: [host] [port]");
+                return;
+            }
+        }
         Scanner scanner = new Scanner(System.in);
 
         try{
-            Socket clientSocket = new Socket("localhost", 12345);
-            System.out.println("Connected to the server at localhost:12345");
+            Socket clientSocket = new Socket(host, port);
+            System.out.println("Connected to the server at " + host + ":" + port);
 
             //read user input from console
             String userInput = scanner.nextLine();
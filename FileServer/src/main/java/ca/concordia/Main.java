@@ -3,11 +3,77 @@ package ca.concordia;
 import ca.concordia.server.FileServer;
 
 public class Main {
+    // e.g. primary: 12345 primary.dat --replication-port 12400
+    //      replica: 12346 replica1.dat --replica-of localhost:12400
+    private static final String USAGE = "Usage: [port] [filesystem file] [--replication-port <port> | --replica-of <host>:<port>]";
+
     public static void main(String[] args) {
         System.out.printf("Hello and welcome!");
 
-        FileServer server = new FileServer(12345, "filesystem.dat", 10 * 128);
+        int port = 12345;
+        String fileSystemName = "filesystem.dat";
+        int replicationPort = -1;
+        String replicaHost = null;
+        int replicaPort = -1;
+
+        try {
+            int positional = 0;
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--replication-port") || args[i].equals("--replica-of")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException(args[i] + " expects a value");
+                    }
+                    if (args[i].equals("--replication-port")) {
+                        replicationPort = parsePort(args[++i]);
+                    } else {
+                        String replicaOf = args[++i];
+                        int separator = replicaOf.lastIndexOf(':');
+                        if (separator <= 0) {
+                            throw new IllegalArgumentException("--replica-of expects <host>:<port>");
+                        }
+                        replicaHost = replicaOf.substring(0, separator);
+                        replicaPort = parsePort(replicaOf.substring(separator + 1));
+                    }
+                } else if (positional == 0) {
+                    port = parsePort(args[i]);
+                    positional++;
+                } else if (positional == 1) {
+                    fileSystemName = args[i];
+                    positional++;
+                } else {
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+            if (replicaHost != null && replicationPort != -1) {
+                throw new IllegalArgumentException("A replica cannot also serve --replication-port");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+
+        FileServer server = new FileServer(port, fileSystemName, 10 * 128);
+
+        if (replicaHost != null) {
+            server.replicateFrom(replicaHost, replicaPort);
+        } else if (replicationPort != -1) {
+            server.enableReplication(replicationPort);
+        }
+
         // Start the file server
         server.start();
     }
-}
\ No newline at end of file
+
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port < 1 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port: " + value);
+            }
+            return port;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port: " + value);
+        }
+    }
+}
@@ -2,17 +2,30 @@ package ca.concordia.filesystem;
 
 import ca.concordia.filesystem.datastructures.FEntry;
 import ca.concordia.filesystem.datastructures.FNode;
+import ca.concordia.filesystem.datastructures.LogEntry;
 
+import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.EOFException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
 
 public class FileSystemManager {
 
     private final int MAXFILES = 5;
     private final int MAXBLOCKS = 10;
-    private static FileSystemManager instance;
+    private static final Set<String> openVolumes = ConcurrentHashMap.newKeySet(); // one manager per disk file
     private final RandomAccessFile disk;
+    private final String volume;
 
     private static final int BLOCK_SIZE = 128; // Example block size
     private static final int METADATA_BLOCKS = 2; //TO RESERVE BLOCKS 0 AND 1
@@ -22,11 +35,20 @@ public class FileSystemManager {
     private FNode[] fnodeTable; // Array of fnodes
     private final ReadWriteLock rwLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
 
+    private long sequence = 0; // number of committed changes, used by replication
+    private final Set<Integer> dirtyBlocks = new TreeSet<>(); // data blocks changed by the current operation, cleared when it ends even if it fails
+    private volatile Consumer<LogEntry> changeListener;
+
     //TO-DO: CHANGE THE FUNCTIONS ACCORDING TO FNode
     public FileSystemManager(String filename, int totalSize) {
 
-        if(instance != null) {
-            throw new IllegalStateException("FileSystemManager is already initialized.");
+        try {
+            this.volume = new File(filename).getCanonicalPath(); // "./fs.dat" or a symlink is the same volume
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to initialize File System.", e);
+        }
+        if (!openVolumes.add(volume)) {
+            throw new IllegalStateException("FileSystemManager is already initialized for " + filename + ".");
         }
 
         try {
@@ -52,9 +74,8 @@ public class FileSystemManager {
                 freshFileSystem();
             }
 
-            instance = this;
-
         } catch (Exception e) {
+            openVolumes.remove(volume);
             throw new RuntimeException("Failed to initialize File System.", e);
         }
 
@@ -84,8 +105,10 @@ public class FileSystemManager {
             inodeTable[freeInode] = new FEntry(fileName, (short) 0, (short) -1);
 
             saveMetadata();
+            commitChange();
 
         } finally {
+            dirtyBlocks.clear();
             rwLock.writeLock().unlock();
         }
     }
@@ -148,6 +171,7 @@ public class FileSystemManager {
                 disk.write(content, startIndex, endIndex - startIndex); //endIndex - StartIndex = how many byte written per block
 
                 freeBlockList[diskIndex] = false; //after writing in it mark it as used
+                dirtyBlocks.add(diskIndex);
 
                 if (i < allocatedBlocks.length - 1) {
                     fnodeTable[diskIndex].setNext(allocatedBlocks[i + 1]);
@@ -160,10 +184,12 @@ public class FileSystemManager {
             entry.setFirstBlock((short) allocatedBlocks[0]);
 
             saveMetadata();
+            commitChange();
 
         } catch (Exception e) {
             throw e;
         } finally {
+            dirtyBlocks.clear();
             rwLock.writeLock().unlock();
         }
     }
@@ -183,12 +209,14 @@ public class FileSystemManager {
                     inodeTable[i] = null; //mark it as delete
 
                     saveMetadata();
+                    commitChange();
                     return;
                 }
             }
             throw new IllegalArgumentException(fileName + " does not exist");
 
         } finally {
+            dirtyBlocks.clear();
             rwLock.writeLock().unlock();
         }
     }
@@ -217,9 +245,8 @@ public class FileSystemManager {
             int currentBlock = entry.getFirstBlock();
 
             while (currentBlock != -1 && bytesRead < fileData.length) {
-                disk.seek((long) currentBlock * BLOCK_SIZE);
                 int bytesToRead = Math.min(BLOCK_SIZE, fileData.length - bytesRead);
-                disk.readFully(fileData, bytesRead, bytesToRead);
+                readAt((long) currentBlock * BLOCK_SIZE, fileData, bytesRead, bytesToRead);
                 bytesRead += bytesToRead;
 
                 currentBlock = fnodeTable[currentBlock].getNext();
@@ -232,6 +259,125 @@ public class FileSystemManager {
         }
     }
 
+    //Registers who receives a LogEntry for every committed change (the replication primary)
+    public void setChangeListener(Consumer<LogEntry> listener) {
+        this.changeListener = listener;
+    }
+
+    public long getSequence() {
+        rwLock.readLock().lock();
+        try {
+            return sequence;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    //Full image of the volume, sent to a replica when it first connects
+    public LogEntry snapshot() throws Exception {
+        rwLock.readLock().lock();
+        try {
+            Map<Integer, byte[]> blocks = new TreeMap<>();
+            for (int i = METADATA_BLOCKS; i < MAXBLOCKS; i++) {
+                blocks.put(i, readBlock(i));
+            }
+            return new LogEntry(sequence, System.currentTimeMillis(), readMetadataRegion(), blocks);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    //Replica side: reads an entry shipped by a primary with this volume's layout
+    public LogEntry readLogEntry(DataInputStream in) throws Exception {
+        return LogEntry.readFrom(in, METADATA_BLOCKS * BLOCK_SIZE, BLOCK_SIZE, MAXBLOCKS - METADATA_BLOCKS);
+    }
+
+    //Replica side: copy the shipped blocks and metadata to disk, then reload the tables from it
+    public void applyLogEntry(LogEntry entry) throws Exception {
+        if (entry.getMetadata().length != METADATA_BLOCKS * BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid metadata length " + entry.getMetadata().length + " in log entry.");
+        }
+        for (Map.Entry<Integer, byte[]> block : entry.getBlocks().entrySet()) {
+            int index = block.getKey();
+            if (index < METADATA_BLOCKS || index >= MAXBLOCKS) {
+                throw new IllegalArgumentException("Invalid block index " + index + " in log entry.");
+            }
+            if (block.getValue().length != BLOCK_SIZE) {
+                throw new IllegalArgumentException("Invalid length " + block.getValue().length + " for block " + index + " in log entry.");
+            }
+        }
+
+        rwLock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, byte[]> block : entry.getBlocks().entrySet()) {
+                int index = block.getKey();
+                disk.seek((long) index * BLOCK_SIZE);
+                disk.write(block.getValue());
+            }
+
+            disk.seek(0);
+            disk.write(entry.getMetadata());
+
+            for (int i = 0; i < MAXFILES; i++) {
+                inodeTable[i] = null;
+            }
+            loadMetadata();
+            sequence = entry.getSequence();
+
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    //Called with the write lock held, after saveMetadata()
+    private void commitChange() throws Exception {
+        sequence++;
+
+        Consumer<LogEntry> listener = changeListener;
+        if (listener != null) {
+            Map<Integer, byte[]> blocks = new TreeMap<>();
+            for (int index : dirtyBlocks) {
+                blocks.put(index, readBlock(index));
+            }
+            listener.accept(new LogEntry(sequence, System.currentTimeMillis(), readMetadataRegion(), blocks));
+        }
+    }
+
+    private byte[] readBlock(int index) throws Exception {
+        byte[] data = new byte[BLOCK_SIZE];
+        readAt((long) index * BLOCK_SIZE, data, 0, BLOCK_SIZE);
+        return data;
+    }
+
+    private byte[] readMetadataRegion() throws Exception {
+        byte[] data = new byte[METADATA_BLOCKS * BLOCK_SIZE];
+        readAt(0, data, 0, data.length);
+        return data;
+    }
+
+    //Positional read: several threads holding the read lock must not share the disk's file pointer
+    private void readAt(long position, byte[] buffer, int offset, int length) throws Exception {
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, length);
+        while (target.hasRemaining()) {
+            int read = disk.getChannel().read(target, position + target.position() - offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of disk at " + position + ".");
+            }
+        }
+    }
+
+    //Releases the disk file so the same volume can be opened again
+    public void close() throws Exception {
+        rwLock.writeLock().lock();
+        try {
+            changeListener = null;
+            disk.close();
+        } finally {
+            openVolumes.remove(volume);
+            rwLock.writeLock().unlock();
+        }
+    }
+
     private void freeFileBlocks(int firstBlock) throws Exception {
         int currentBlock = firstBlock;
         byte[] zeros = new byte[BLOCK_SIZE];
@@ -243,6 +389,7 @@ public class FileSystemManager {
             disk.write(zeros);
 
             freeBlockList[currentBlock] = true; //mark block as free
+            dirtyBlocks.add(currentBlock);
             fnodeTable[currentBlock].setNext(-1);
             currentBlock = nextBlock;
         }
@@ -0,0 +1,82 @@
+package ca.concordia.filesystem.datastructures;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+//One committed change of the file system: the metadata region plus every data block it touched
+public class LogEntry {
+
+    private final long sequence;
+    private final long timestamp; // when the primary committed it (ms)
+    private final byte[] metadata;
+    private final Map<Integer, byte[]> blocks; // block index -> block contents
+
+    public LogEntry(long sequence, long timestamp, byte[] metadata, Map<Integer, byte[]> blocks) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.metadata = metadata;
+        this.blocks = blocks;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getMetadata() {
+        return metadata;
+    }
+
+    public Map<Integer, byte[]> getBlocks() {
+        return blocks;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(sequence);
+        out.writeLong(timestamp);
+        out.writeInt(metadata.length);
+        out.write(metadata);
+
+        out.writeInt(blocks.size());
+        for (Map.Entry<Integer, byte[]> block : blocks.entrySet()) {
+            out.writeInt(block.getKey());
+            out.writeInt(block.getValue().length);
+            out.write(block.getValue());
+        }
+    }
+
+    //Sizes come from the receiving volume; anything else is rejected before allocating
+    public static LogEntry readFrom(DataInputStream in, int metadataSize, int blockSize, int maxBlocks) throws IOException {
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+        byte[] metadata = new byte[checkLength(in.readInt(), metadataSize, "metadata")];
+        in.readFully(metadata);
+
+        int blockCount = in.readInt();
+        if (blockCount < 0 || blockCount > maxBlocks) {
+            throw new IOException("Invalid block count " + blockCount + " in log entry.");
+        }
+        Map<Integer, byte[]> blocks = new TreeMap<>();
+        for (int i = 0; i < blockCount; i++) {
+            int index = in.readInt();
+            byte[] data = new byte[checkLength(in.readInt(), blockSize, "block " + index)];
+            in.readFully(data);
+            blocks.put(index, data);
+        }
+
+        return new LogEntry(sequence, timestamp, metadata, blocks);
+    }
+
+    private static int checkLength(int length, int expected, String what) throws IOException {
+        if (length != expected) {
+            throw new IOException("Invalid " + what + " length " + length + " in log entry, expected " + expected + ".");
+        }
+        return length;
+    }
+}
@@ -6,11 +6,18 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileServer {
 
     private FileSystemManager fsManager;
     private int port;
+    private ReplicationPrimary replicationPrimary; // set when this node ships its log
+    private ReplicaClient replicaClient; // set when this node is a read-only replica
+    private volatile ServerSocket serverSocket;
+    private volatile boolean stopped = false;
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
 
     public FileServer(int port, String fileSystemName, int totalSize){
         // Initialize the FileSystemManager
@@ -18,20 +25,68 @@ public class FileServer {
         this.port = port;
     }
 
+    //Primary: lets replicas follow this node's changes on the given port
+    public void enableReplication(int replicationPort) {
+        this.replicationPrimary = new ReplicationPrimary(fsManager, replicationPort);
+        replicationPrimary.start();
+    }
+
+    //Replica: follows the primary's replication port and serves read-only traffic
+    public void replicateFrom(String primaryHost, int replicationPort) {
+        this.replicaClient = new ReplicaClient(fsManager, primaryHost, replicationPort);
+        replicaClient.start();
+    }
+
     public void start(){
-        try (ServerSocket serverSocket = new ServerSocket(12345)) {
-            System.out.println("Server started. Listening on port 12345...");
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            this.serverSocket = serverSocket;
+            if (stopped) {
+                return;
+            }
+            System.out.println("Server started. Listening on port " + port + "...");
 
-            while (true) {
+            while (!stopped) {
                 Socket clientSocket = serverSocket.accept();
                 System.out.println("Handling client: " + clientSocket);
 
+                clients.add(clientSocket);
                 Thread.ofVirtual().start(() -> clientHandler(clientSocket));
             }
 
+        } catch (Exception e) {
+            if (!stopped) {
+                e.printStackTrace();
+                System.err.println("Could not start server on port " + port);
+            }
+        }
+    }
+
+    //Makes start() return, disconnects clients and replication, and closes the volume
+    public void stop() {
+        stopped = true;
+        try {
+            ServerSocket current = serverSocket;
+            if (current != null) {
+                current.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        for (Socket clientSocket : clients) {
+            ReplicationPrimary.closeQuietly(clientSocket); // one failing close must not leave the others open
+        }
+
+        if (replicationPrimary != null) {
+            replicationPrimary.stop();
+        }
+        if (replicaClient != null) {
+            replicaClient.stop();
+        }
+
+        try {
+            fsManager.close();
         } catch (Exception e) {
             e.printStackTrace();
-            System.err.println("Could not start server on port " + port);
         }
     }
 
@@ -46,6 +101,12 @@ public class FileServer {
                 String[] parts = line.split(" ");
                 String command = parts[0].toUpperCase();
 
+                if (replicaClient != null && (command.equals("CREATE") || command.equals("WRITE") || command.equals("DELETE"))) {
+                    writer.println("ERROR: Read-only replica, send " + command + " to the primary (replicating from " + replicaClient.getPrimaryAddress() + ").");
+                    writer.flush();
+                    continue;
+                }
+
                 switch (command) {
                     case "CREATE":
                         if (parts.length < 2) {
@@ -124,6 +185,16 @@ public class FileServer {
                         }
                         writer.flush();
                         break;
+                    case "STATUS":
+                        if (replicaClient != null) {
+                            writer.println("STATUS: " + replicaClient.getStatus());
+                        } else if (replicationPrimary != null) {
+                            writer.println("STATUS: role=primary sequence=" + fsManager.getSequence() + " replicas=" + replicationPrimary.getReplicaCount());
+                        } else {
+                            writer.println("STATUS: role=standalone sequence=" + fsManager.getSequence());
+                        }
+                        writer.flush();
+                        break;
                     case "QUIT":
                         writer.println("SUCCESS: Disconnecting.");
                         writer.flush();
@@ -135,9 +206,12 @@ public class FileServer {
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Error handling client: " + clientSocket);
+            if (!stopped) {
+                e.printStackTrace();
+                System.err.println("Error handling client: " + clientSocket);
+            }
         } finally {
+            clients.remove(clientSocket);
             try {
                 clientSocket.close();
             } catch (Exception e) {
@@ -0,0 +1,146 @@
+package ca.concordia.server;
+
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.datastructures.LogEntry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.net.Socket;
+
+//Follows a primary's change log and applies it to the local (read-only) volume
+public class ReplicaClient {
+
+    private static final long RECONNECT_MILLIS = 2000;
+
+    private final FileSystemManager fsManager;
+    private final String primaryHost;
+    private final int primaryPort;
+
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+    private volatile Socket socket;
+    private Thread follower;
+    private volatile long appliedSequence = -1;
+    private volatile long primarySequence = -1;
+    private volatile long lastContactMillis = -1; // last entry or heartbeat received
+    private volatile long caughtUpMillis = -1; // primary time at which this replica last held the primary's latest state
+
+    public ReplicaClient(FileSystemManager fsManager, String primaryHost, int primaryPort) {
+        this.fsManager = fsManager;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+    }
+
+    public void start() {
+        running = true;
+        follower = Thread.ofVirtual().start(() -> {
+            while (running) {
+                follow();
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    //Stops following the primary; the local volume keeps what was applied so far
+    public void stop() {
+        running = false;
+        try {
+            Socket current = socket;
+            if (current != null) {
+                current.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (follower != null) {
+            follower.interrupt();
+            try {
+                follower.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public String getPrimaryAddress() {
+        return primaryHost + ":" + primaryPort;
+    }
+
+    //Replication lag as reported by the STATUS command
+    public String getStatus() {
+        long now = System.currentTimeMillis();
+        String lagEntries;
+        String lagMillis;
+        if (!connected) {
+            // The primary's position is unknown, only say how long we have been cut off
+            lagEntries = "unknown";
+            lagMillis = lastContactMillis < 0 ? "unknown" : String.valueOf(Math.max(0, now - lastContactMillis));
+        } else {
+            lagEntries = String.valueOf(Math.max(0, primarySequence - appliedSequence));
+            lagMillis = caughtUpMillis < 0 ? "unknown" : String.valueOf(Math.max(0, now - caughtUpMillis));
+        }
+        return "role=replica primary=" + getPrimaryAddress()
+                + " connected=" + connected
+                + " sequence=" + appliedSequence
+                + " primarySequence=" + primarySequence
+                + " lagEntries=" + lagEntries
+                + " lagMillis=" + lagMillis;
+    }
+
+    private void follow() {
+        try (Socket socket = new Socket(primaryHost, primaryPort);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            this.socket = socket;
+            if (!running) {
+                return;
+            }
+            System.out.println("Following primary at " + getPrimaryAddress());
+            primarySequence = -1; // unknown until this connection's snapshot arrives
+            boolean first = true; // the first entry is always the full snapshot
+
+            while (true) {
+                byte type = in.readByte();
+                if (type == ReplicationPrimary.ENTRY) {
+                    LogEntry entry = fsManager.readLogEntry(in);
+                    primarySequence = first ? entry.getSequence() : Math.max(primarySequence, entry.getSequence());
+                    if (!first && entry.getSequence() > appliedSequence + 1) {
+                        // Entries only carry their own blocks, reconnect for a fresh snapshot instead
+                        throw new IllegalStateException("Missed log entries " + (appliedSequence + 1) + " to " + (entry.getSequence() - 1));
+                    }
+                    if (first || entry.getSequence() > appliedSequence) {
+                        fsManager.applyLogEntry(entry);
+                        appliedSequence = entry.getSequence();
+                    }
+                    first = false;
+                    connected = true; // only once the snapshot is on disk
+                    markContact(entry.getTimestamp());
+                } else if (type == ReplicationPrimary.HEARTBEAT) {
+                    primarySequence = in.readLong();
+                    markContact(in.readLong());
+                } else {
+                    throw new IllegalStateException("Unknown replication message: " + type);
+                }
+            }
+
+        } catch (Exception e) {
+            if (!running) {
+                return;
+            }
+            System.err.println("Lost connection to primary at " + getPrimaryAddress() + ": " + e.getMessage());
+        } finally {
+            connected = false;
+        }
+    }
+
+    //primaryTimestamp is when the primary sent what we just received
+    private void markContact(long primaryTimestamp) {
+        lastContactMillis = System.currentTimeMillis();
+        if (appliedSequence >= primarySequence) {
+            caughtUpMillis = Math.max(caughtUpMillis, primaryTimestamp);
+        }
+    }
+}
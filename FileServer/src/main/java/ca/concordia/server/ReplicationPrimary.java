@@ -0,0 +1,131 @@
+package ca.concordia.server;
+
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.datastructures.LogEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//Ships the primary's change log to every connected replica
+public class ReplicationPrimary {
+
+    static final byte ENTRY = 'E';
+    static final byte HEARTBEAT = 'H';
+    static final long HEARTBEAT_MILLIS = 1000;
+    static final int MAX_PENDING_ENTRIES = 64; // a replica further behind is dropped and re-snapshots on reconnect
+
+    private final FileSystemManager fsManager;
+    private final int port;
+    private final Map<BlockingQueue<LogEntry>, Socket> replicas = new ConcurrentHashMap<>(); // pending entries -> replica
+    private ServerSocket serverSocket;
+    private volatile boolean running = false;
+
+    public ReplicationPrimary(FileSystemManager fsManager, int port) {
+        this.fsManager = fsManager;
+        this.port = port;
+    }
+
+    public void start() {
+        try {
+            serverSocket = new ServerSocket(port);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start replication on port " + port, e);
+        }
+        running = true;
+
+        // Runs under the file system write lock, so it only hands the entry over
+        fsManager.setChangeListener(entry -> {
+            for (Map.Entry<BlockingQueue<LogEntry>, Socket> replica : replicas.entrySet()) {
+                if (!replica.getKey().offer(entry)) {
+                    System.err.println("Replica too far behind, dropping: " + replica.getValue());
+                    replicas.remove(replica.getKey());
+                    closeQuietly(replica.getValue());
+                }
+            }
+        });
+
+        Thread.ofVirtual().start(() -> {
+            System.out.println("Replication log available on port " + port + "...");
+            try {
+                while (running) {
+                    Socket replicaSocket = serverSocket.accept();
+                    System.out.println("Replica connected: " + replicaSocket);
+
+                    Thread.ofVirtual().start(() -> replicaHandler(replicaSocket));
+                }
+
+            } catch (Exception e) {
+                if (running) {
+                    e.printStackTrace();
+                    System.err.println("Replication stopped accepting on port " + port);
+                }
+            }
+        });
+    }
+
+    //Stops accepting replicas and disconnects the current ones
+    public void stop() {
+        running = false;
+        fsManager.setChangeListener(null);
+        try {
+            serverSocket.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        for (Socket replicaSocket : replicas.values()) {
+            closeQuietly(replicaSocket);
+        }
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    private void replicaHandler(Socket replicaSocket) {
+        // Subscribe before taking the snapshot: entries already in the snapshot are skipped by the replica
+        BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>(MAX_PENDING_ENTRIES);
+        replicas.put(queue, replicaSocket);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(replicaSocket.getOutputStream()))) {
+            out.writeByte(ENTRY);
+            fsManager.snapshot().writeTo(out);
+            out.flush();
+
+            while (running) {
+                LogEntry entry = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (entry != null) {
+                    out.writeByte(ENTRY);
+                    entry.writeTo(out);
+                } else {
+                    // Lets the replica know the primary's position while no writes happen
+                    out.writeByte(HEARTBEAT);
+                    out.writeLong(fsManager.getSequence());
+                    out.writeLong(System.currentTimeMillis());
+                }
+                out.flush();
+            }
+
+        } catch (Exception e) {
+            System.err.println("Replica disconnected: " + replicaSocket);
+        } finally {
+            replicas.remove(queue);
+            closeQuietly(replicaSocket);
+        }
+    }
+
+    static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ca.concordia.filesystem;
+
+import ca.concordia.filesystem.datastructures.LogEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileSystemManagerTest {
+
+    private static final int BLOCK_SIZE = 128;
+
+    @TempDir
+    Path dir;
+
+    private FileSystemManager fsManager;
+
+    @AfterEach
+    void close() throws Exception {
+        if (fsManager != null) {
+            fsManager.close();
+        }
+    }
+
+    @Test
+    void commitsOneEntryPerChangeWithTheBlocksItTouched() throws Exception {
+        fsManager = new FileSystemManager(dir.resolve("fs.dat").toString(), 10 * BLOCK_SIZE);
+        List<LogEntry> log = new ArrayList<>();
+        fsManager.setChangeListener(log::add);
+
+        fsManager.createFile("a");
+        assertEquals(1, log.get(0).getSequence());
+        assertEquals(Set.of(), log.get(0).getBlocks().keySet());
+        assertEquals(2 * BLOCK_SIZE, log.get(0).getMetadata().length);
+
+        fsManager.writeFile("a", "y".repeat(300).getBytes()); // blocks 2, 3, 4
+        assertEquals(2, log.get(1).getSequence());
+        assertEquals(Set.of(2, 3, 4), log.get(1).getBlocks().keySet());
+        assertArrayEquals(block("y".repeat(BLOCK_SIZE)), log.get(1).getBlocks().get(2));
+
+        // The new content goes to block 5 before the old chain is freed: all four blocks are shipped
+        fsManager.writeFile("a", "x".getBytes());
+        assertEquals(3, log.get(2).getSequence());
+        assertEquals(Set.of(2, 3, 4, 5), log.get(2).getBlocks().keySet());
+        assertArrayEquals(block(""), log.get(2).getBlocks().get(2));
+        assertArrayEquals(block(""), log.get(2).getBlocks().get(4));
+        assertArrayEquals(block("x"), log.get(2).getBlocks().get(5));
+
+        fsManager.deleteFile("a");
+        assertEquals(4, log.get(3).getSequence());
+        assertEquals(Set.of(5), log.get(3).getBlocks().keySet());
+        assertArrayEquals(block(""), log.get(3).getBlocks().get(5));
+
+        // A failed operation commits nothing
+        assertThrows(IllegalArgumentException.class, () -> fsManager.deleteFile("a"));
+        assertEquals(4, log.size());
+        assertEquals(4, fsManager.getSequence());
+    }
+
+    @Test
+    void snapshotAndLogRebuildTheVolumeOnAnotherManager() throws Exception {
+        fsManager = new FileSystemManager(dir.resolve("primary.dat").toString(), 10 * BLOCK_SIZE);
+        fsManager.createFile("a");
+        fsManager.writeFile("a", "first".getBytes());
+        fsManager.createFile("b");
+        fsManager.writeFile("b", "z".repeat(200).getBytes());
+
+        List<LogEntry> log = new ArrayList<>();
+        fsManager.setChangeListener(log::add);
+        LogEntry snapshot = fsManager.snapshot();
+
+        FileSystemManager replica = new FileSystemManager(dir.resolve("replica.dat").toString(), 10 * BLOCK_SIZE);
+        try {
+            replica.applyLogEntry(snapshot);
+            assertEquals(4, replica.getSequence());
+            assertEquals("a b", String.join(" ", replica.listFiles()));
+            assertArrayEquals("first".getBytes(), replica.readFile("a"));
+            assertArrayEquals("z".repeat(200).getBytes(), replica.readFile("b"));
+
+            fsManager.deleteFile("a");
+            fsManager.writeFile("b", "second".getBytes());
+            fsManager.createFile("c");
+            for (LogEntry entry : log) {
+                replica.applyLogEntry(entry);
+            }
+
+            assertEquals(fsManager.getSequence(), replica.getSequence());
+            assertEquals(String.join(" ", fsManager.listFiles()), String.join(" ", replica.listFiles()));
+            assertArrayEquals("second".getBytes(), replica.readFile("b"));
+            assertArrayEquals(new byte[0], replica.readFile("c"));
+            assertArrayEquals(Files.readAllBytes(dir.resolve("primary.dat")), Files.readAllBytes(dir.resolve("replica.dat")));
+        } finally {
+            replica.close();
+        }
+    }
+
+    @Test
+    void rejectsLogEntriesWithWrongSizes() throws Exception {
+        fsManager = new FileSystemManager(dir.resolve("fs.dat").toString(), 10 * BLOCK_SIZE);
+        fsManager.createFile("a");
+
+        Map<Integer, byte[]> oversizedBlock = new TreeMap<>();
+        oversizedBlock.put(2, new byte[BLOCK_SIZE + 1]);
+        LogEntry badBlock = new LogEntry(1, 0, new byte[2 * BLOCK_SIZE], oversizedBlock);
+        LogEntry badMetadata = new LogEntry(1, 0, new byte[3 * BLOCK_SIZE], new TreeMap<>());
+
+        assertThrows(IllegalArgumentException.class, () -> fsManager.applyLogEntry(badBlock));
+        assertThrows(IllegalArgumentException.class, () -> fsManager.applyLogEntry(badMetadata));
+        assertThrows(IOException.class, () -> fsManager.readLogEntry(serialize(badBlock)));
+        assertThrows(IOException.class, () -> fsManager.readLogEntry(serialize(badMetadata)));
+
+        // Nothing was written
+        assertEquals("a", String.join(" ", fsManager.listFiles()));
+    }
+
+    @Test
+    void refusesToOpenTheSameVolumeTwice() throws Exception {
+        fsManager = new FileSystemManager(dir.resolve("fs.dat").toString(), 10 * BLOCK_SIZE);
+        Path link = Files.createSymbolicLink(dir.resolve("link.dat"), dir.resolve("fs.dat"));
+
+        assertThrows(IllegalStateException.class, () -> new FileSystemManager(dir.resolve(".").resolve("fs.dat").toString(), 10 * BLOCK_SIZE));
+        assertThrows(IllegalStateException.class, () -> new FileSystemManager(link.toString(), 10 * BLOCK_SIZE));
+
+        // Released by close()
+        fsManager.close();
+        fsManager = new FileSystemManager(link.toString(), 10 * BLOCK_SIZE);
+    }
+
+    //Contents padded with zeros to a full block
+    private static byte[] block(String contents) {
+        return Arrays.copyOf(contents.getBytes(), BLOCK_SIZE);
+    }
+
+    private static DataInputStream serialize(LogEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entry.writeTo(new DataOutputStream(bytes));
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}
@@ -0,0 +1,111 @@
+package ca.concordia.server;
+
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.datastructures.LogEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Drives a ReplicaClient from a hand-written primary
+class ReplicaClientTest {
+
+    private static final int TOTAL_SIZE = 10 * 128;
+
+    @TempDir
+    Path dir;
+
+    private FileSystemManager source;
+    private FileSystemManager replica;
+    private ReplicaClient client;
+    private ServerSocket fakePrimary;
+
+    @AfterEach
+    void stop() throws Exception {
+        if (client != null) {
+            client.stop();
+        }
+        if (fakePrimary != null) {
+            fakePrimary.close();
+        }
+        if (replica != null) {
+            replica.close();
+        }
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    @Test
+    void reportsConnectedOnlyAfterTheSnapshot() throws Exception {
+        source = new FileSystemManager(dir.resolve("source.dat").toString(), TOTAL_SIZE);
+        replica = new FileSystemManager(dir.resolve("replica.dat").toString(), TOTAL_SIZE);
+        source.createFile("a");
+        fakePrimary = new ServerSocket(0);
+        client = new ReplicaClient(replica, "localhost", fakePrimary.getLocalPort());
+        client.start();
+
+        try (Socket socket = fakePrimary.accept()) {
+            Thread.sleep(200); // connection is open, nothing applied yet
+            assertTrue(client.getStatus().contains(" connected=false "), client.getStatus());
+            assertTrue(client.getStatus().contains(" lagEntries=unknown "), client.getStatus());
+
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(ReplicationPrimary.ENTRY);
+            source.snapshot().writeTo(out);
+            out.flush();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!client.getStatus().contains(" connected=true ") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(client.getStatus().contains(" connected=true sequence=1 primarySequence=1 lagEntries=0 "), client.getStatus());
+            assertEquals("a", String.join(" ", replica.listFiles()));
+        }
+    }
+
+    @Test
+    void reconnectsWhenAnEntryIsMissing() throws Exception {
+        source = new FileSystemManager(dir.resolve("source.dat").toString(), TOTAL_SIZE);
+        replica = new FileSystemManager(dir.resolve("replica.dat").toString(), TOTAL_SIZE);
+        fakePrimary = new ServerSocket(0);
+        client = new ReplicaClient(replica, "localhost", fakePrimary.getLocalPort());
+        client.start();
+
+        // Snapshot at 0, then entry 2: entry 1 was never sent
+        Socket first = fakePrimary.accept();
+        DataOutputStream out = new DataOutputStream(first.getOutputStream());
+        out.writeByte(ReplicationPrimary.ENTRY);
+        source.snapshot().writeTo(out);
+        out.writeByte(ReplicationPrimary.ENTRY);
+        new LogEntry(2, System.currentTimeMillis(), source.snapshot().getMetadata(), new TreeMap<>()).writeTo(out);
+        out.flush();
+
+        // The replica drops the connection and comes back for a new snapshot
+        BlockingQueue<Socket> reconnects = new LinkedBlockingQueue<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                reconnects.add(fakePrimary.accept());
+            } catch (Exception ignored) {
+            }
+        });
+        Socket second = reconnects.poll(10, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals(-1, first.getInputStream().read()); // closed by the replica
+
+        second.close();
+        first.close();
+    }
+}
@@ -0,0 +1,141 @@
+package ca.concordia.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Runs a primary and two replicas on localhost
+class ReplicationTest {
+
+    private static final int TOTAL_SIZE = 10 * 128;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @TempDir
+    Path dir;
+
+    private final List<FileServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        for (FileServer server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void replicasFollowThePrimary() throws Exception {
+        int primaryPort = freePort();
+        int replicationPort = freePort();
+        startServer(primaryPort, "primary.dat", null, replicationPort);
+
+        // Already on the primary before any replica connects: arrives with the snapshot
+        assertEquals("SUCCESS: File 'a' created.", send(primaryPort, "CREATE a"));
+        assertEquals("SUCCESS: File 'a' written.", send(primaryPort, "WRITE a hello"));
+
+        int replica1Port = freePort();
+        int replica2Port = freePort();
+        startServer(replica1Port, "replica1.dat", replicationPort, -1);
+        FileServer replica2 = startServer(replica2Port, "replica2.dat", replicationPort, -1);
+
+        awaitResponse(replica1Port, "READ a", "CONTENTS: hello");
+        awaitResponse(replica2Port, "READ a", "CONTENTS: hello");
+
+        // Changes made afterwards are shipped through the log
+        String longContent = "x".repeat(300); // spans several blocks
+        send(primaryPort, "CREATE b");
+        send(primaryPort, "WRITE b " + longContent);
+        send(primaryPort, "DELETE a");
+        for (int port : new int[]{replica1Port, replica2Port}) {
+            awaitResponse(port, "LIST", "FILES: b");
+            awaitResponse(port, "READ b", "CONTENTS: " + longContent);
+            awaitResponse(port, "READ a", "ERROR: a does not exist");
+        }
+
+        // Replicas are read-only
+        for (String command : new String[]{"CREATE c", "WRITE b nope", "DELETE b"}) {
+            assertTrue(send(replica1Port, command).startsWith("ERROR: Read-only replica"), command);
+        }
+        assertEquals("CONTENTS: " + longContent, send(replica1Port, "READ b"));
+        assertEquals("FILES: b", send(primaryPort, "LIST"));
+
+        // A replica that was down resyncs from a new snapshot when it comes back on the same volume
+        replica2.stop();
+        servers.remove(replica2);
+        send(primaryPort, "WRITE b changed");
+        send(primaryPort, "CREATE c");
+
+        int restartedPort = freePort();
+        startServer(restartedPort, "replica2.dat", replicationPort, -1);
+        awaitResponse(restartedPort, "LIST", "FILES: c b"); // c reuses the entry freed by a
+        awaitResponse(restartedPort, "READ b", "CONTENTS: changed");
+        awaitResponse(replica1Port, "READ b", "CONTENTS: changed");
+
+        assertTrue(send(primaryPort, "STATUS").startsWith("STATUS: role=primary"));
+        awaitResponse(restartedPort, "STATUS", line -> line.contains(" connected=true ") && line.contains(" lagEntries=0 "));
+    }
+
+    //replicaOf / replicationPort: the replication port to follow / to serve on, -1 or null for neither
+    private FileServer startServer(int port, String file, Integer replicaOf, int replicationPort) throws Exception {
+        FileServer server = new FileServer(port, dir.resolve(file).toString(), TOTAL_SIZE);
+        servers.add(server);
+        if (replicaOf != null) {
+            server.replicateFrom("localhost", replicaOf);
+        }
+        if (replicationPort != -1) {
+            server.enableReplication(replicationPort);
+        }
+        Thread.ofVirtual().start(server::start);
+        awaitResponse(port, "LIST", line -> true); // listening
+        return server;
+    }
+
+    private void awaitResponse(int port, String command, String expected) throws Exception {
+        awaitResponse(port, command, expected::equals);
+    }
+
+    //Retries the command until the node's answer matches (replicas apply the log asynchronously)
+    private void awaitResponse(int port, String command, Predicate<String> matches) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        String last = null;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                last = send(port, command);
+                if (last != null && matches.test(last)) {
+                    return;
+                }
+            } catch (Exception e) {
+                last = e.toString(); // node not listening yet
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Port " + port + " answered '" + last + "' to " + command);
+    }
+
+    private static String send(int port, String command) throws Exception {
+        try (Socket socket = new Socket("localhost", port);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
+            writer.println(command);
+            return reader.readLine();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}